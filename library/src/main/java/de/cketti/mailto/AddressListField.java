@@ -0,0 +1,205 @@
+/*
+ * Copyright 2015-2019 cketti
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cketti.mailto;
+
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+
+/**
+ * A form field containing a list of email addresses separated by commas or semicolons.
+ *
+ * <p>Add an instance as {@link android.text.TextWatcher} to an {@code EditText}. Every edit only validates and encodes
+ * the addresses it touched.</p>
+ *
+ * @see ComposeForm
+ */
+@SuppressWarnings("WeakerAccess")
+public final class AddressListField extends SegmentedField<AddressListField.Address> {
+
+    AddressListField() {
+    }
+
+    /**
+     * Get all email addresses in this field, in order.
+     *
+     * <p>The returned tokens are a snapshot. Their offsets refer to the text at the time of this call.</p>
+     *
+     * @return a list of tokens, including invalid ones
+     */
+    @NotNull
+    public List<Token> getTokens() {
+        List<Token> tokens = new ArrayList<>(segments.size());
+        for (Address address : segments) {
+            tokens.add(address.toToken());
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Get the tokens that don't contain a valid email address.
+     *
+     * <p>The returned tokens are a snapshot. Their offsets refer to the text at the time of this call.</p>
+     *
+     * @return a list of invalid tokens, in order
+     */
+    @NotNull
+    public List<Token> getInvalidTokens() {
+        List<Token> invalidTokens = new ArrayList<>();
+        for (Address address : segments) {
+            if (!address.isValid()) {
+                invalidTokens.add(address.toToken());
+            }
+        }
+
+        return invalidTokens;
+    }
+
+    /**
+     * Check whether this field contains invalid email addresses.
+     *
+     * @return {@code true} if at least one token is not a valid email address; {@code false} otherwise
+     */
+    public boolean hasErrors() {
+        for (Address address : segments) {
+            if (!address.isValid()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the encoded email addresses, without duplicates, in order.
+     *
+     * <p>Must only be called when {@link #hasErrors()} returns {@code false}.</p>
+     */
+    @NotNull
+    Set<String> getEncodedAddresses() {
+        Set<String> encodedAddresses = new LinkedHashSet<>();
+        for (Address address : segments) {
+            encodedAddresses.add(address.encodedAddress);
+        }
+
+        return encodedAddresses;
+    }
+
+    @Override
+    void scan(@NotNull CharSequence text, int from, int to, @NotNull List<Address> out) {
+        int tokenStart = from;
+        for (int i = from; i <= to; i++) {
+            if (i == to || isDelimiter(text.charAt(i))) {
+                addToken(text, tokenStart, i, out);
+                tokenStart = i + 1;
+            }
+        }
+    }
+
+    private static void addToken(CharSequence text, int start, int end, List<Address> out) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+
+        if (start < end) {
+            String address = text.subSequence(start, end).toString();
+            out.add(new Address(start, end, address));
+        }
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c == ',' || c == ';';
+    }
+
+
+    /**
+     * An email address in an {@link AddressListField}.
+     */
+    public static final class Token {
+        private final int start;
+        private final int end;
+        private final String address;
+        private final boolean valid;
+
+        Token(int start, int end, String address, boolean valid) {
+            this.start = start;
+            this.end = end;
+            this.address = address;
+            this.valid = valid;
+        }
+
+        /**
+         * @return the offset of the first character of this token in the field's text
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * @return the offset after the last character of this token in the field's text
+         */
+        public int getEnd() {
+            return end;
+        }
+
+        /**
+         * @return the email address, without surrounding whitespace
+         */
+        @NotNull
+        public String getAddress() {
+            return address;
+        }
+
+        /**
+         * @return {@code true} if this token is a valid email address (according to {@code Patterns.EMAIL_ADDRESS})
+         */
+        public boolean isValid() {
+            return valid;
+        }
+    }
+
+    static final class Address extends SegmentedField.Segment {
+        final String address;
+        @Nullable
+        final String encodedAddress;
+
+        Address(int start, int end, String address) {
+            super(start, end);
+            this.address = address;
+            this.encodedAddress = EmailIntentBuilder.isValidEmail(address) ?
+                    EmailIntentBuilder.encodeRecipient(address) : null;
+        }
+
+        boolean isValid() {
+            return encodedAddress != null;
+        }
+
+        Token toToken() {
+            return new Token(start, end, address, isValid());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2015-2019 cketti
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cketti.mailto;
+
+
+import android.content.Context;
+import android.content.Intent;
+
+import org.jetbrains.annotations.NotNull;
+
+
+/**
+ * A model for a compose form whose fields are validated and encoded while the user is typing.
+ *
+ * <p>Each field is a {@link android.text.TextWatcher} that only validates and encodes the parts of the text touched by
+ * an edit. Building the {@link Intent#ACTION_SENDTO} intent then only has to concatenate the encoded parts.</p>
+ *
+ * <p>The resulting {@code mailto:} URI matches the one {@link EmailIntentBuilder} creates for the same input, with one
+ * exception: an empty subject or body is left out, while {@code EmailIntentBuilder.subject("")} adds an empty
+ * {@code subject=} parameter. Duplicate email addresses are dropped in both cases.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * <code>
+ * ComposeForm form = ComposeForm.from(activity);
+ * toEditText.addTextChangedListener(form.to());
+ * subjectEditText.addTextChangedListener(form.subject());
+ * bodyEditText.addTextChangedListener(form.body());
+ *
+ * // When the user presses "Send"
+ * if (!form.hasErrors()) {
+ *     form.start();
+ * }
+ * </code>
+ * </pre>
+ *
+ * @see EmailIntentBuilder
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ComposeForm {
+    private final Context context;
+    private final AddressListField to = new AddressListField();
+    private final AddressListField cc = new AddressListField();
+    private final AddressListField bcc = new AddressListField();
+    private final TextField subject = new TextField(false);
+    private final TextField body = new TextField(true);
+
+
+    private ComposeForm(@NotNull Context context) {
+        this.context = checkNotNull(context);
+    }
+
+    /**
+     * Create a compose form model.
+     *
+     * @param context
+     *         The {@code Context} that will be used to launch the intent
+     *
+     * @return A compose form model
+     */
+    @NotNull
+    public static ComposeForm from(@NotNull Context context) {
+        return new ComposeForm(context);
+    }
+
+    /**
+     * @return the "to" field
+     */
+    @NotNull
+    public AddressListField to() {
+        return to;
+    }
+
+    /**
+     * @return the "cc" field
+     */
+    @NotNull
+    public AddressListField cc() {
+        return cc;
+    }
+
+    /**
+     * @return the "bcc" field
+     */
+    @NotNull
+    public AddressListField bcc() {
+        return bcc;
+    }
+
+    /**
+     * @return the subject field
+     */
+    @NotNull
+    public TextField subject() {
+        return subject;
+    }
+
+    /**
+     * @return the body field
+     */
+    @NotNull
+    public TextField body() {
+        return body;
+    }
+
+    /**
+     * Check whether any of the fields contains invalid input.
+     *
+     * @return {@code true} if at least one field contains errors; {@code false} otherwise
+     */
+    public boolean hasErrors() {
+        return to.hasErrors() || cc.hasErrors() || bcc.hasErrors() || subject.hasErrors() || body.hasErrors();
+    }
+
+    /**
+     * Launch the email intent.
+     *
+     * @return {@code false} if no activity to handle the email intent could be found; {@code true} otherwise
+     *
+     * @throws IllegalStateException
+     *         if any of the fields contains errors
+     */
+    public boolean start() {
+        Intent emailIntent = build();
+        return MailtoIntents.start(context, emailIntent);
+    }
+
+    /**
+     * Build the {@link Intent#ACTION_SENDTO} intent.
+     *
+     * @return the intent containing the current content of the form
+     *
+     * @throws IllegalStateException
+     *         if any of the fields contains errors
+     */
+    @NotNull
+    public Intent build() {
+        if (hasErrors()) {
+            throw new IllegalStateException("Form contains errors");
+        }
+
+        return MailtoIntents.createIntent(to.getEncodedAddresses(), cc.getEncodedAddresses(),
+                bcc.getEncodedAddresses(), encodeValue(subject), encodeValue(body));
+    }
+
+    private static String encodeValue(TextField field) {
+        return field.isEmpty() ? null : field.getEncodedText();
+    }
+
+    @NotNull
+    private static <T> T checkNotNull(T object) {
+        if (object == null) {
+            throw new IllegalArgumentException("Argument must not be null");
+        }
+
+        return object;
+    }
+}
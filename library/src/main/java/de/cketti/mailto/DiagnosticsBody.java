@@ -0,0 +1,425 @@
+/*
+ * Copyright 2015-2019 cketti
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cketti.mailto;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import org.jetbrains.annotations.NotNull;
+
+
+/**
+ * A helper to compose the text body of a feedback or support email containing diagnostic information.
+ *
+ * <p>The body starts with an optional message, followed by information about the app version, the device, the
+ * Android version, and the current locale. The app and device information doesn't change while the app is running.
+ * So it is only computed once per process. Additional sections (e.g. recent log messages) can be added using
+ * {@link #section(String, Section)}. They are collected in parallel when the body is composed. Collecting a section
+ * is limited by a timeout and its text is truncated to a maximum length.</p>
+ *
+ * <p>{@link #compose()} blocks the calling thread until all sections have been collected or timed out. Use
+ * {@link #composeAsync(Callback)} to avoid blocking the main thread.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * <code>
+ * DiagnosticsBody.from(activity)
+ *         .message("[Your feedback here]")
+ *         .section("Recent log messages", logSection)
+ *         .composeAsync(new DiagnosticsBody.Callback() {
+ *             &#64;Override
+ *             public void onComposed(String body) {
+ *                 EmailIntentBuilder.from(activity)
+ *                         .to("support@example.org")
+ *                         .subject("Feedback for 'My awesome app'")
+ *                         .body(body)
+ *                         .start();
+ *             }
+ *         });
+ * </code>
+ * </pre>
+ *
+ * @see EmailIntentBuilder#body(DiagnosticsBody)
+ */
+@SuppressWarnings("WeakerAccess")
+public final class DiagnosticsBody {
+    static final long DEFAULT_SECTION_TIMEOUT_MILLIS = 300;
+    static final int DEFAULT_MAX_SECTION_LENGTH = 16 * 1024;
+    static final String TRUNCATED_MARKER = "\r\n[truncated]";
+    static final int MAX_SECTION_THREADS = 4;
+    static final int MAX_QUEUED_SECTIONS = 16;
+
+    private static volatile String staticSections;
+
+    private final Context context;
+    private final List<NamedSection> sections = new ArrayList<>();
+    private String message;
+    private long sectionTimeoutMillis = DEFAULT_SECTION_TIMEOUT_MILLIS;
+    private int maxSectionLength = DEFAULT_MAX_SECTION_LENGTH;
+
+
+    private DiagnosticsBody(@NotNull Context context) {
+        this.context = checkNotNull(context);
+    }
+
+    /**
+     * Create a composer for a text body containing diagnostic information.
+     *
+     * @param context
+     *         The {@code Context} that will be used to retrieve information about the app
+     *
+     * @return A diagnostics body composer
+     */
+    @NotNull
+    public static DiagnosticsBody from(@NotNull Context context) {
+        return new DiagnosticsBody(context);
+    }
+
+    /**
+     * Set the message that is displayed in front of the diagnostic information.
+     *
+     * @param message
+     *         the message text
+     *
+     * @return This {@code DiagnosticsBody} for method chaining
+     */
+    @NotNull
+    public DiagnosticsBody message(@NotNull String message) {
+        checkNotNull(message);
+        this.message = EmailIntentBuilder.fixLineBreaks(message);
+        return this;
+    }
+
+    /**
+     * Add a section whose text is collected when the body is composed.
+     *
+     * @param title
+     *         the title of the section; must not contain line breaks
+     * @param section
+     *         the callback used to collect the text of the section
+     *
+     * @return This {@code DiagnosticsBody} for method chaining
+     */
+    @NotNull
+    public DiagnosticsBody section(@NotNull String title, @NotNull Section section) {
+        checkNotNull(title);
+        EmailIntentBuilder.checkNoLineBreaks(title);
+        checkNotNull(section);
+        sections.add(new NamedSection(title, section));
+        return this;
+    }
+
+    /**
+     * Set the maximum time to wait for a section to be collected.
+     *
+     * <p>Sections are collected in parallel. So {@link #compose()} blocks for at most this amount of time.</p>
+     *
+     * @param timeout
+     *         the maximum time to wait
+     * @param unit
+     *         the time unit of the {@code timeout} argument
+     *
+     * @return This {@code DiagnosticsBody} for method chaining
+     */
+    @NotNull
+    public DiagnosticsBody sectionTimeout(long timeout, @NotNull TimeUnit unit) {
+        checkNotNull(unit);
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Argument must not be negative");
+        }
+
+        sectionTimeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * Set the maximum number of characters of a section's text. Longer texts will be truncated.
+     *
+     * @param maxLength
+     *         the maximum number of characters
+     *
+     * @return This {@code DiagnosticsBody} for method chaining
+     */
+    @NotNull
+    public DiagnosticsBody maxSectionLength(int maxLength) {
+        if (maxLength < 1) {
+            throw new IllegalArgumentException("Argument must be positive");
+        }
+
+        maxSectionLength = maxLength;
+        return this;
+    }
+
+    /**
+     * Compose the text body.
+     *
+     * <p>This collects all sections in parallel and blocks the calling thread until they complete or time out. Use
+     * {@link #composeAsync(Callback)} when calling from the main thread.</p>
+     *
+     * @return the text body using CRLF line breaks
+     */
+    @NotNull
+    public String compose() {
+        List<Future<String>> futures = collectSections();
+
+        StringBuilder body = new StringBuilder(1024);
+        if (message != null) {
+            body.append(message).append("\r\n\r\n");
+        }
+
+        body.append("--- Diagnostics ---\r\n");
+        body.append(getStaticSections(context));
+        body.append("Locale: ").append(Locale.getDefault()).append("\r\n");
+
+        long deadline = System.currentTimeMillis() + sectionTimeoutMillis;
+        for (int i = 0, size = sections.size(); i < size; i++) {
+            NamedSection section = sections.get(i);
+            String text = awaitSection(futures.get(i), deadline);
+
+            body.append("\r\n--- ").append(section.title).append(" ---\r\n");
+            body.append(text).append("\r\n");
+        }
+
+        return body.toString();
+    }
+
+    /**
+     * Compose the text body on a background thread.
+     *
+     * <p>The callback is invoked on the main thread once all sections have been collected or timed out.</p>
+     *
+     * @param callback
+     *         the callback that receives the text body
+     */
+    public void composeAsync(@NotNull final Callback callback) {
+        checkNotNull(callback);
+
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        ExecutorHolder.COMPOSE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final String body = compose();
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onComposed(body);
+                    }
+                });
+            }
+        });
+    }
+
+    private List<Future<String>> collectSections() {
+        List<Future<String>> futures = new ArrayList<>(sections.size());
+        if (sections.isEmpty()) {
+            return futures;
+        }
+
+        ExecutorService executor = ExecutorHolder.SECTION_EXECUTOR;
+        for (final NamedSection section : sections) {
+            try {
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        String text = section.section.collect();
+                        return text != null ? text : "";
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                // Too many sections are still running or waiting, e.g. because they ignore interruption
+                futures.add(null);
+            }
+        }
+
+        return futures;
+    }
+
+    private String awaitSection(Future<String> future, long deadline) {
+        if (future == null) {
+            return "[skipped: too many sections pending]";
+        }
+
+        long remainingMillis = Math.max(0, deadline - System.currentTimeMillis());
+        try {
+            String text = future.get(remainingMillis, TimeUnit.MILLISECONDS);
+            // Truncate before fixing line breaks so a CRLF pair can't be cut in half
+            return EmailIntentBuilder.fixLineBreaks(truncate(text, maxSectionLength));
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            // Remove the task from the queue in case it didn't start yet
+            ExecutorHolder.SECTION_EXECUTOR.purge();
+            return "[timed out]";
+        } catch (ExecutionException e) {
+            return EmailIntentBuilder.fixLineBreaks("[failed: " + e.getCause() + "]");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return "[interrupted]";
+        }
+    }
+
+    @NotNull
+    static String getStaticSections(@NotNull Context context) {
+        String result = staticSections;
+        if (result == null) {
+            // Racing threads compute the same text. So there's no need to synchronize.
+            result = createStaticSections(context);
+            staticSections = result;
+        }
+
+        return result;
+    }
+
+    @NotNull
+    private static String createStaticSections(Context context) {
+        StringBuilder text = new StringBuilder(256);
+        text.append("App: ").append(context.getPackageName()).append(' ')
+                .append(getAppVersion(context)).append("\r\n");
+        text.append("Device: ").append(Build.MANUFACTURER).append(' ').append(Build.MODEL)
+                .append(" (").append(Build.DEVICE).append(")\r\n");
+        text.append("Android version: ").append(Build.VERSION.RELEASE)
+                .append(" (API ").append(Build.VERSION.SDK_INT).append(")\r\n");
+
+        return text.toString();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static String getAppVersion(Context context) {
+        try {
+            PackageManager packageManager = context.getPackageManager();
+            PackageInfo packageInfo = packageManager.getPackageInfo(context.getPackageName(), 0);
+            return packageInfo.versionName + " (" + packageInfo.versionCode + ")";
+        } catch (PackageManager.NameNotFoundException | RuntimeException e) {
+            return "[unknown version]";
+        }
+    }
+
+    @NotNull
+    static String truncate(@NotNull String text, int maxLength) {
+        if (text.length() <= maxLength) {
+            return text;
+        }
+
+        int end = maxLength;
+        if (Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+
+        return text.substring(0, end) + TRUNCATED_MARKER;
+    }
+
+    @NotNull
+    private static <T> T checkNotNull(T object) {
+        if (object == null) {
+            throw new IllegalArgumentException("Argument must not be null");
+        }
+
+        return object;
+    }
+
+
+    /**
+     * A callback that collects the text of a diagnostics section, e.g. recent log messages.
+     *
+     * <p>This is called on a background thread. At most four sections are collected at the
+     * same time, shared by all {@code DiagnosticsBody} instances.</p>
+     */
+    public interface Section {
+        /**
+         * Collect the text of this section.
+         *
+         * <p>When the section times out, the collecting thread is interrupted. Implementations must stop promptly when
+         * that happens, e.g. by using interruptible I/O or by checking {@link Thread#isInterrupted()}. Otherwise they
+         * keep occupying one of the shared threads, and later sections may be skipped.</p>
+         *
+         * @return the text of this section
+         *
+         * @throws Exception
+         *         if the text couldn't be collected. The section will contain an error message instead.
+         */
+        String collect() throws Exception;
+    }
+
+    /**
+     * A callback that receives the text body composed by {@link #composeAsync(Callback)}.
+     */
+    public interface Callback {
+        /**
+         * Called on the main thread when the text body has been composed.
+         *
+         * @param body
+         *         the text body using CRLF line breaks
+         */
+        void onComposed(@NotNull String body);
+    }
+
+    private static final class NamedSection {
+        final String title;
+        final Section section;
+
+        NamedSection(String title, Section section) {
+            this.title = title;
+            this.section = section;
+        }
+    }
+
+    private static final class ExecutorHolder {
+        private static final long KEEP_ALIVE_SECONDS = 30;
+
+        static final ThreadPoolExecutor SECTION_EXECUTOR = createExecutor("DiagnosticsBody-section",
+                MAX_SECTION_THREADS, new LinkedBlockingQueue<Runnable>(MAX_QUEUED_SECTIONS));
+
+        // Composing waits for sections with a timeout, so a single thread and an unbounded queue are enough
+        static final ThreadPoolExecutor COMPOSE_EXECUTOR = createExecutor("DiagnosticsBody-compose", 1,
+                new LinkedBlockingQueue<Runnable>());
+
+        private static ThreadPoolExecutor createExecutor(final String threadName, int threads,
+                BlockingQueue<Runnable> queue) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    queue, new ThreadFactory() {
+                        @Override
+                        public Thread newThread(@NotNull Runnable runnable) {
+                            Thread thread = new Thread(runnable, threadName);
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    }, new ThreadPoolExecutor.AbortPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+}
@@ -17,12 +17,12 @@
 package de.cketti.mailto;
 
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
-import android.app.Activity;
-import android.content.ActivityNotFoundException;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
@@ -213,6 +213,25 @@ public final class EmailIntentBuilder {
         return this;
     }
 
+    /**
+     * Set the text body for this email intent to the text composed by a {@link DiagnosticsBody}.
+     *
+     * <p>This blocks the calling thread until all sections of the diagnostics body have been collected or timed out.
+     * When calling from the main thread, prefer {@link DiagnosticsBody#composeAsync(DiagnosticsBody.Callback)} and pass
+     * the result to {@link #body(String)}.</p>
+     *
+     * @param body
+     *         the diagnostics body composer
+     *
+     * @return This {@code EmailIntentBuilder} for method chaining
+     */
+    @NotNull
+    public EmailIntentBuilder body(@NotNull DiagnosticsBody body) {
+        checkNotNull(body);
+        this.body = body.compose();
+        return this;
+    }
+
     /**
      * Launch the email intent.
      *
@@ -220,21 +239,7 @@ public final class EmailIntentBuilder {
      */
     public boolean start() {
         Intent emailIntent = build();
-        try {
-            startActivity(emailIntent);
-        } catch (ActivityNotFoundException e) {
-            return false;
-        }
-
-        return true;
-    }
-
-    private void startActivity(Intent intent) {
-        if (!(context instanceof Activity)) {
-            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-        }
-
-        context.startActivity(intent);
+        return MailtoIntents.start(context, emailIntent);
     }
 
     /**
@@ -244,70 +249,65 @@ public final class EmailIntentBuilder {
      */
     @NotNull
     public Intent build() {
-        Uri mailtoUri = constructMailtoUri();
-        return new Intent(Intent.ACTION_SENDTO, mailtoUri);
+        return MailtoIntents.createIntent(encodeRecipients(to), encodeRecipients(cc), encodeRecipients(bcc),
+                encodeValue(subject), encodeValue(body));
     }
 
+    /**
+     * Build one or more {@link Intent#ACTION_SENDTO} intents whose {@code mailto:} URIs don't exceed the given length.
+     *
+     * <p>Some email apps truncate or reject {@code mailto:} URIs containing a large number of recipients. This method
+     * distributes the recipients over as few intents as possible. Every intent contains the subject and the body.
+     * Launch the intents one after another to address all recipients.</p>
+     *
+     * @param maxUriLength
+     *         the maximum number of characters of each {@code mailto:} URI
+     *
+     * @return the list of intents, in the order they should be launched
+     *
+     * @throws IllegalArgumentException
+     *         if subject, body, and a single recipient don't fit into a URI of {@code maxUriLength} characters
+     */
     @NotNull
-    private Uri constructMailtoUri() {
-        StringBuilder mailto = new StringBuilder(1024);
-        mailto.append("mailto:");
-        addRecipients(mailto, to);
-
-        boolean hasQueryParameters;
-        hasQueryParameters = addRecipientQueryParameters(mailto, "cc", cc, false);
-        hasQueryParameters = addRecipientQueryParameters(mailto, "bcc", bcc, hasQueryParameters);
-        hasQueryParameters = addQueryParameter(mailto, "subject", subject, hasQueryParameters);
-        addQueryParameter(mailto, "body", body, hasQueryParameters);
-
-        return Uri.parse(mailto.toString());
-    }
-
-    private boolean addQueryParameter(StringBuilder mailto, String field, String value, boolean hasQueryParameters) {
-        if (value == null) {
-            return hasQueryParameters;
-        }
+    public List<Intent> buildChunked(int maxUriLength) {
+        RecipientChunkPlanner planner = new RecipientChunkPlanner(maxUriLength, subject, body);
+        List<RecipientChunkPlanner.Chunk> chunks = planner.plan(to, cc, bcc);
 
-        mailto.append(hasQueryParameters ? '&' : '?').append(field).append('=').append(Uri.encode(value));
+        String encodedSubject = encodeValue(subject);
+        String encodedBody = encodeValue(body);
 
-        return true;
-    }
-
-    private boolean addRecipientQueryParameters(StringBuilder mailto, String field, Set<String> recipients,
-            boolean hasQueryParameters) {
-        if (recipients.isEmpty()) {
-            return hasQueryParameters;
+        List<Intent> intents = new ArrayList<>(chunks.size());
+        for (RecipientChunkPlanner.Chunk chunk : chunks) {
+            intents.add(MailtoIntents.createIntent(encodeRecipients(chunk.to), encodeRecipients(chunk.cc),
+                    encodeRecipients(chunk.bcc), encodedSubject, encodedBody));
         }
 
-        mailto.append(hasQueryParameters ? '&' : '?').append(field).append('=');
-        addRecipients(mailto, recipients);
-
-        return true;
+        return intents;
     }
 
-    private void addRecipients(StringBuilder mailto, Set<String> recipients) {
-        if (recipients.isEmpty()) {
-            return;
-        }
-
+    private static List<String> encodeRecipients(Set<String> recipients) {
+        List<String> encodedRecipients = new ArrayList<>(recipients.size());
         for (String recipient : recipients) {
-            mailto.append(encodeRecipient(recipient));
-            mailto.append(',');
+            encodedRecipients.add(encodeRecipient(recipient));
         }
 
-        mailto.setLength(mailto.length() - 1);
+        return encodedRecipients;
+    }
+
+    private static String encodeValue(String value) {
+        return value != null ? Uri.encode(value) : null;
     }
 
     private void checkEmail(String email) {
         checkNotNull(email);
 
-        if (!Patterns.EMAIL_ADDRESS.matcher(email).matches()) {
+        if (!isValidEmail(email)) {
             throw new IllegalArgumentException("Argument is not a valid email address (according to " +
                     "Patterns.EMAIL_ADDRESS)");
         }
     }
 
-    private void checkNoLineBreaks(String text) {
+    static void checkNoLineBreaks(String text) {
         boolean containsCarriageReturn = text.indexOf('\r') != -1;
         boolean containsLineFeed = text.indexOf('\n') != -1;
 
@@ -325,6 +325,10 @@ public final class EmailIntentBuilder {
         return object;
     }
 
+    static boolean isValidEmail(@NotNull String email) {
+        return Patterns.EMAIL_ADDRESS.matcher(email).matches();
+    }
+
     @NotNull
     static String encodeRecipient(String recipient) {
         int index = recipient.lastIndexOf('@');
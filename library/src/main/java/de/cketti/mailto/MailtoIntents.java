@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015-2019 cketti
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cketti.mailto;
+
+
+import java.util.Collection;
+
+import android.app.Activity;
+import android.content.ActivityNotFoundException;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+
+/**
+ * Assembles {@link Intent#ACTION_SENDTO} intents from already encoded {@code mailto:} URI components and launches them.
+ */
+final class MailtoIntents {
+    private MailtoIntents() {
+    }
+
+    /**
+     * Create an {@link Intent#ACTION_SENDTO} intent.
+     *
+     * @param encodedTo
+     *         the encoded recipients for the "to" field (see {@link EmailIntentBuilder#encodeRecipient(String)})
+     * @param encodedCc
+     *         the encoded recipients for the "cc" field
+     * @param encodedBcc
+     *         the encoded recipients for the "bcc" field
+     * @param encodedSubject
+     *         the encoded subject (see {@link Uri#encode(String)}), or {@code null} to omit the subject
+     * @param encodedBody
+     *         the encoded body, or {@code null} to omit the body
+     *
+     * @return the email intent
+     */
+    @NotNull
+    static Intent createIntent(@NotNull Collection<String> encodedTo, @NotNull Collection<String> encodedCc,
+            @NotNull Collection<String> encodedBcc, @Nullable String encodedSubject, @Nullable String encodedBody) {
+        StringBuilder mailto = new StringBuilder(1024);
+        mailto.append("mailto:");
+        addRecipients(mailto, encodedTo);
+
+        boolean hasQueryParameters;
+        hasQueryParameters = addRecipientQueryParameters(mailto, "cc", encodedCc, false);
+        hasQueryParameters = addRecipientQueryParameters(mailto, "bcc", encodedBcc, hasQueryParameters);
+        hasQueryParameters = addQueryParameter(mailto, "subject", encodedSubject, hasQueryParameters);
+        addQueryParameter(mailto, "body", encodedBody, hasQueryParameters);
+
+        Uri mailtoUri = Uri.parse(mailto.toString());
+        return new Intent(Intent.ACTION_SENDTO, mailtoUri);
+    }
+
+    /**
+     * Launch an email intent.
+     *
+     * @return {@code false} if no activity to handle the email intent could be found; {@code true} otherwise
+     */
+    static boolean start(@NotNull Context context, @NotNull Intent intent) {
+        if (!(context instanceof Activity)) {
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        }
+
+        try {
+            context.startActivity(intent);
+        } catch (ActivityNotFoundException e) {
+            return false;
+        }
+
+        return true;
+    }
+
+    private static boolean addQueryParameter(StringBuilder mailto, String field, String encodedValue,
+            boolean hasQueryParameters) {
+        if (encodedValue == null) {
+            return hasQueryParameters;
+        }
+
+        mailto.append(hasQueryParameters ? '&' : '?').append(field).append('=').append(encodedValue);
+
+        return true;
+    }
+
+    private static boolean addRecipientQueryParameters(StringBuilder mailto, String field,
+            Collection<String> encodedRecipients, boolean hasQueryParameters) {
+        if (encodedRecipients.isEmpty()) {
+            return hasQueryParameters;
+        }
+
+        mailto.append(hasQueryParameters ? '&' : '?').append(field).append('=');
+        addRecipients(mailto, encodedRecipients);
+
+        return true;
+    }
+
+    private static void addRecipients(StringBuilder mailto, Collection<String> encodedRecipients) {
+        if (encodedRecipients.isEmpty()) {
+            return;
+        }
+
+        for (String encodedRecipient : encodedRecipients) {
+            mailto.append(encodedRecipient);
+            mailto.append(',');
+        }
+
+        mailto.setLength(mailto.length() - 1);
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2015-2019 cketti
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cketti.mailto;
+
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+
+/**
+ * Distributes recipients over multiple {@code mailto:} URIs so that none of them exceeds a maximum length.
+ *
+ * <p>Lengths are computed from the encoded length of each recipient without building the URIs. Recipients are
+ * assigned to the first chunk with enough room left (first fit). So recipients keep their relative order within each
+ * chunk, and later chunks are only started when a recipient doesn't fit into any of the existing ones.</p>
+ */
+final class RecipientChunkPlanner {
+    private static final String MAILTO_PREFIX = "mailto:";
+    // "?subject=" or "&subject="
+    private static final int SUBJECT_PARAMETER_LENGTH = 9;
+    // "?body=" or "&body="
+    private static final int BODY_PARAMETER_LENGTH = 6;
+    // "?cc=" or "&cc="
+    private static final int CC_PARAMETER_LENGTH = 4;
+    // "?bcc=" or "&bcc="
+    private static final int BCC_PARAMETER_LENGTH = 5;
+
+    private static final int FIELD_TO = 0;
+    private static final int FIELD_CC = 1;
+    private static final int FIELD_BCC = 2;
+
+    private final int maxUriLength;
+    private final int baseLength;
+
+
+    RecipientChunkPlanner(int maxUriLength, @Nullable String subject, @Nullable String body) {
+        this.maxUriLength = maxUriLength;
+
+        int length = MAILTO_PREFIX.length();
+        if (subject != null) {
+            length += SUBJECT_PARAMETER_LENGTH + encodedLength(subject);
+        }
+        if (body != null) {
+            length += BODY_PARAMETER_LENGTH + encodedLength(body);
+        }
+        baseLength = length;
+
+        if (baseLength > maxUriLength) {
+            throw new IllegalArgumentException("Subject and body don't fit into a URI of " + maxUriLength +
+                    " characters");
+        }
+    }
+
+    @NotNull
+    List<Chunk> plan(@NotNull Set<String> to, @NotNull Set<String> cc, @NotNull Set<String> bcc) {
+        List<Chunk> chunks = new ArrayList<>();
+        assign(chunks, to, FIELD_TO);
+        assign(chunks, cc, FIELD_CC);
+        assign(chunks, bcc, FIELD_BCC);
+
+        if (chunks.isEmpty()) {
+            chunks.add(new Chunk(baseLength));
+        }
+
+        return chunks;
+    }
+
+    private void assign(List<Chunk> chunks, Set<String> recipients, int field) {
+        for (String recipient : recipients) {
+            int recipientLength = encodedRecipientLength(recipient);
+
+            Chunk target = null;
+            for (Chunk chunk : chunks) {
+                if (chunk.length + chunk.costOf(field, recipientLength) <= maxUriLength) {
+                    target = chunk;
+                    break;
+                }
+            }
+
+            if (target == null) {
+                target = new Chunk(baseLength);
+                if (target.length + target.costOf(field, recipientLength) > maxUriLength) {
+                    throw new IllegalArgumentException("Recipient doesn't fit into a URI of " + maxUriLength +
+                            " characters");
+                }
+                chunks.add(target);
+            }
+
+            target.add(field, recipient, recipientLength);
+        }
+    }
+
+    /**
+     * Returns the length of {@link EmailIntentBuilder#encodeRecipient(String)}'s result.
+     */
+    static int encodedRecipientLength(@NotNull String recipient) {
+        int index = recipient.lastIndexOf('@');
+        return encodedLength(recipient, 0, index) + 1 + encodedLength(recipient, index + 1, recipient.length());
+    }
+
+    /**
+     * Returns the length of {@link android.net.Uri#encode(String)}'s result.
+     */
+    static int encodedLength(@NotNull String text) {
+        return encodedLength(text, 0, text.length());
+    }
+
+    private static int encodedLength(String text, int start, int end) {
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (isAllowed(c)) {
+                length += 1;
+            } else if (c < 0x80) {
+                length += 3;
+            } else if (c < 0x800) {
+                length += 6;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 12;
+                i++;
+            } else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+                // Unpaired surrogates are replaced with '?' when converted to UTF-8
+                length += 3;
+            } else {
+                length += 9;
+            }
+        }
+
+        return length;
+    }
+
+    private static boolean isAllowed(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') ||
+                "_-!.~'()*".indexOf(c) != -1;
+    }
+
+
+    static final class Chunk {
+        final Set<String> to = new LinkedHashSet<>();
+        final Set<String> cc = new LinkedHashSet<>();
+        final Set<String> bcc = new LinkedHashSet<>();
+        int length;
+
+        Chunk(int baseLength) {
+            length = baseLength;
+        }
+
+        int costOf(int field, int recipientLength) {
+            if (!recipientsOf(field).isEmpty()) {
+                // ","
+                return 1 + recipientLength;
+            }
+
+            switch (field) {
+                case FIELD_CC:
+                    return CC_PARAMETER_LENGTH + recipientLength;
+                case FIELD_BCC:
+                    return BCC_PARAMETER_LENGTH + recipientLength;
+                default:
+                    return recipientLength;
+            }
+        }
+
+        void add(int field, String recipient, int recipientLength) {
+            length += costOf(field, recipientLength);
+            recipientsOf(field).add(recipient);
+        }
+
+        private Set<String> recipientsOf(int field) {
+            switch (field) {
+                case FIELD_CC:
+                    return cc;
+                case FIELD_BCC:
+                    return bcc;
+                default:
+                    return to;
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015-2019 cketti
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cketti.mailto;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.text.Editable;
+import android.text.TextWatcher;
+
+import org.jetbrains.annotations.NotNull;
+
+
+/**
+ * Base class for form fields that split their text into segments separated by delimiters.
+ *
+ * <p>When the text is edited, only the segments touched by the edit (plus one neighbor on either side, in case a
+ * delimiter was changed) are scanned again. The offsets of the segments following the edit are shifted. All other
+ * segments, including whatever was computed for them, are kept.</p>
+ *
+ * <p>Subclasses must make sure that scanning a range that starts and ends at segment boundaries yields the same
+ * segments as scanning the whole text.</p>
+ *
+ * @param <S>
+ *         the segment type
+ */
+abstract class SegmentedField<S extends SegmentedField.Segment> implements TextWatcher {
+    final List<S> segments = new ArrayList<>();
+    int textLength;
+
+
+    /**
+     * Replace the complete text of this field.
+     *
+     * <p>Use this if the text was changed without notifying this {@link TextWatcher}, e.g. before it was added to a
+     * {@code TextView}.</p>
+     *
+     * @param text
+     *         the new text
+     */
+    public void setText(@NotNull CharSequence text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Argument must not be null");
+        }
+
+        segments.clear();
+        scan(text, 0, text.length(), segments);
+        textLength = text.length();
+    }
+
+    @Override
+    public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+    }
+
+    @Override
+    public void onTextChanged(CharSequence s, int start, int before, int count) {
+        int size = segments.size();
+        int oldEnd = start + before;
+        int delta = count - before;
+
+        // The segment preceding the first touched one starts and ends before the edit. So does the delimiter in front
+        // of it.
+        int firstTouched = indexOfFirstSegmentEndingAtOrAfter(start);
+        int first = Math.max(firstTouched - 1, 0);
+
+        // The segment following the last touched one starts after the edit. So does the delimiter following it.
+        int next = indexOfLastSegmentStartingAtOrBefore(oldEnd) + 1;
+
+        int from = firstTouched == 0 ? 0 : segments.get(first).start;
+        int to = next < size ? segments.get(next).end + delta : s.length();
+        int removeEnd = Math.min(next + 1, size);
+
+        for (int i = removeEnd; i < size; i++) {
+            S segment = segments.get(i);
+            segment.start += delta;
+            segment.end += delta;
+        }
+
+        List<S> replacement = new ArrayList<>();
+        scan(s, from, to, replacement);
+
+        if (first < removeEnd) {
+            segments.subList(first, removeEnd).clear();
+        }
+        segments.addAll(first, replacement);
+        textLength = s.length();
+    }
+
+    @Override
+    public void afterTextChanged(Editable s) {
+    }
+
+    private int indexOfFirstSegmentEndingAtOrAfter(int offset) {
+        int low = 0;
+        int high = segments.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (segments.get(middle).end < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private int indexOfLastSegmentStartingAtOrBefore(int offset) {
+        int low = 0;
+        int high = segments.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (segments.get(middle).start <= offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low - 1;
+    }
+
+    /**
+     * Split the text between {@code from} and {@code to} into segments.
+     *
+     * @param text
+     *         the complete text of the field
+     * @param from
+     *         the start of the range to scan; the beginning of the text or the start of a segment
+     * @param to
+     *         the end of the range to scan; the end of the text or the end of a segment
+     * @param out
+     *         the list the segments are added to, in order
+     */
+    abstract void scan(@NotNull CharSequence text, int from, int to, @NotNull List<S> out);
+
+
+    abstract static class Segment {
+        int start;
+        int end;
+
+        Segment(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015-2019 cketti
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cketti.mailto;
+
+
+import java.util.List;
+
+import android.net.Uri;
+
+import org.jetbrains.annotations.NotNull;
+
+
+/**
+ * A form field containing text, i.e. the subject or the body of an email.
+ *
+ * <p>Add an instance as {@link android.text.TextWatcher} to an {@code EditText}. The text is encoded line by line. So
+ * every edit only encodes the lines it touched. Line breaks are normalized to CRLF.</p>
+ *
+ * @see ComposeForm
+ */
+@SuppressWarnings("WeakerAccess")
+public final class TextField extends SegmentedField<TextField.Line> {
+    // Encoded CRLF
+    private static final String ENCODED_LINE_BREAK = "%0D%0A";
+
+    private final boolean allowLineBreaks;
+
+
+    TextField(boolean allowLineBreaks) {
+        this.allowLineBreaks = allowLineBreaks;
+        setText("");
+    }
+
+    /**
+     * Check whether this field is empty.
+     *
+     * @return {@code true} if this field doesn't contain any text; {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return textLength == 0;
+    }
+
+    /**
+     * Check whether this field contains line breaks even though they are not allowed, e.g. in the subject.
+     *
+     * @return {@code true} if this field contains forbidden line breaks; {@code false} otherwise
+     */
+    public boolean hasErrors() {
+        return !allowLineBreaks && segments.size() > 1;
+    }
+
+    @NotNull
+    String getEncodedText() {
+        StringBuilder output = new StringBuilder(textLength * 3);
+        for (int i = 0, size = segments.size(); i < size; i++) {
+            if (i > 0) {
+                output.append(ENCODED_LINE_BREAK);
+            }
+            output.append(segments.get(i).encodedText);
+        }
+
+        return output.toString();
+    }
+
+    @Override
+    void scan(@NotNull CharSequence text, int from, int to, @NotNull List<Line> out) {
+        int lineStart = from;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == '\r' || c == '\n') {
+                out.add(new Line(text, lineStart, i));
+                if (c == '\r' && i + 1 < to && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                lineStart = i + 1;
+            }
+        }
+
+        out.add(new Line(text, lineStart, to));
+    }
+
+
+    static final class Line extends SegmentedField.Segment {
+        final String encodedText;
+
+        Line(CharSequence text, int start, int end) {
+            super(start, end);
+            encodedText = Uri.encode(text.subSequence(start, end).toString());
+        }
+    }
+}
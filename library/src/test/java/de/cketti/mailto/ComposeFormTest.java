@@ -0,0 +1,224 @@
+package de.cketti.mailto;
+
+
+import java.util.List;
+import java.util.Random;
+
+import android.content.Context;
+import android.content.Intent;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.android.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ComposeFormTest {
+
+    @Mock
+    private Context context;
+
+    private ComposeForm form;
+
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        form = ComposeForm.from(context);
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    @Test(expected = IllegalArgumentException.class)
+    public void from_withNullArgument_shouldThrow() {
+        ComposeForm.from(null);
+    }
+
+    @Test
+    public void build_withEmptyForm_shouldReturnEmptyMailtoUri() {
+        Intent intent = form.build();
+
+        assertThat(intent).hasAction(Intent.ACTION_SENDTO).hasData("mailto:");
+    }
+
+    @Test
+    public void to_withCommaSeparatedAddresses_shouldSplitIntoTokens() {
+        type(form.to(), "alice@example.org, bob@example.org;charles@example.org ");
+
+        List<AddressListField.Token> tokens = form.to().getTokens();
+        assertThat(tokens).hasSize(3);
+        assertThat(tokens.get(0).getAddress()).isEqualTo("alice@example.org");
+        assertThat(tokens.get(1).getAddress()).isEqualTo("bob@example.org");
+        assertThat(tokens.get(1).getStart()).isEqualTo(19);
+        assertThat(tokens.get(1).getEnd()).isEqualTo(34);
+        assertThat(tokens.get(2).getAddress()).isEqualTo("charles@example.org");
+        assertThat(form.to().hasErrors()).isFalse();
+    }
+
+    @Test
+    public void to_withInvalidAddress_shouldReportInvalidToken() {
+        type(form.to(), "alice@example.org, bob(at)example.org");
+
+        List<AddressListField.Token> invalidTokens = form.to().getInvalidTokens();
+        assertThat(invalidTokens).hasSize(1);
+        assertThat(invalidTokens.get(0).getAddress()).isEqualTo("bob(at)example.org");
+        assertThat(form.hasErrors()).isTrue();
+    }
+
+    @Test
+    public void to_afterFixingInvalidAddress_shouldNotReportErrors() {
+        StringBuilder text = new StringBuilder();
+        edit(form.to(), text, 0, 0, "alice@example.org, bob(at)example.org");
+
+        edit(form.to(), text, 22, 4, "@");
+
+        assertThat(text.toString()).isEqualTo("alice@example.org, bob@example.org");
+        assertThat(form.to().hasErrors()).isFalse();
+        assertThat(form.to().getTokens()).hasSize(2);
+    }
+
+    @Test
+    public void to_withEditInFirstAddress_shouldShiftOffsetsOfOtherTokens() {
+        StringBuilder text = new StringBuilder();
+        edit(form.to(), text, 0, 0, "alice@example.org, bob@example.org, charles@example.org, dave@example.org");
+
+        edit(form.to(), text, 0, 0, "x");
+
+        List<AddressListField.Token> tokens = form.to().getTokens();
+        assertThat(tokens.get(0).getAddress()).isEqualTo("xalice@example.org");
+        assertThat(tokens.get(3).getAddress()).isEqualTo("dave@example.org");
+        assertThat(tokens.get(3).getStart()).isEqualTo(58);
+    }
+
+    @Test
+    public void getTokens_afterEdit_shouldNotChangePreviouslyReturnedTokens() {
+        StringBuilder text = new StringBuilder();
+        edit(form.to(), text, 0, 0, "alice@example.org, bob(at)example.org");
+        AddressListField.Token invalidToken = form.to().getInvalidTokens().get(0);
+
+        edit(form.to(), text, 0, 0, "x");
+
+        assertThat(invalidToken.getStart()).isEqualTo(19);
+        assertThat(invalidToken.getEnd()).isEqualTo(37);
+        assertThat(form.to().getInvalidTokens().get(0).getStart()).isEqualTo(20);
+    }
+
+    @Test
+    public void subject_withLineBreak_shouldReportError() {
+        type(form.subject(), "Keep\nreading");
+
+        assertThat(form.subject().hasErrors()).isTrue();
+        assertThat(form.hasErrors()).isTrue();
+    }
+
+    @Test
+    public void build_withEmptySubjectAndBody_shouldOmitThem() {
+        StringBuilder subjectText = new StringBuilder();
+        edit(form.subject(), subjectText, 0, 0, "hi");
+        edit(form.subject(), subjectText, 0, 2, "");
+        type(form.to(), "john@example.org");
+
+        Intent intent = form.build();
+
+        assertThat(intent).hasData("mailto:john@example.org");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void build_withErrors_shouldThrow() {
+        type(form.to(), "hi@");
+
+        form.build();
+    }
+
+    @Test
+    public void build_withAllFields_shouldReturnSameResultAsEmailIntentBuilder() {
+        type(form.to(), "leia@example.org, luke@example.org");
+        type(form.cc(), "obi.wan@example.org,han@example.org, obi.wan@example.org");
+        type(form.bcc(), "chewbacca@example.org");
+        type(form.subject(), "rebel stuff");
+        type(form.body(), "start execution of secret plan\r\n& good luck\rbye\n");
+
+        Intent intent = form.build();
+
+        Intent expectedIntent = EmailIntentBuilder.from(context)
+                .to("leia@example.org")
+                .to("luke@example.org")
+                .cc("obi.wan@example.org")
+                .cc("han@example.org")
+                .bcc("chewbacca@example.org")
+                .subject("rebel stuff")
+                .body("start execution of secret plan\r\n& good luck\rbye\n")
+                .build();
+        assertThat(intent).hasData(expectedIntent.getDataString());
+    }
+
+    @Test
+    public void body_afterRandomEdits_shouldMatchFullScan() {
+        Random random = new Random(42);
+        String alphabet = "ab \r\n\r\n%&";
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < 2000; i++) {
+            randomEdit(random, alphabet, form.body(), text);
+
+            TextField expected = new TextField(true);
+            expected.setText(text);
+            assertThat(encode(form.body())).as(text.toString()).isEqualTo(encode(expected));
+        }
+    }
+
+    @Test
+    public void to_afterRandomEdits_shouldMatchFullScan() {
+        Random random = new Random(42);
+        String alphabet = "ab@.c, ;\n";
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < 2000; i++) {
+            randomEdit(random, alphabet, form.to(), text);
+
+            AddressListField expected = new AddressListField();
+            expected.setText(text);
+            assertThat(describe(form.to())).as(text.toString()).isEqualTo(describe(expected));
+        }
+    }
+
+    private static void type(SegmentedField<?> field, String text) {
+        edit(field, new StringBuilder(), 0, 0, text);
+    }
+
+    private static void edit(SegmentedField<?> field, StringBuilder text, int start, int before, String replacement) {
+        text.replace(start, start + before, replacement);
+        field.onTextChanged(text.toString(), start, before, replacement.length());
+    }
+
+    private static void randomEdit(Random random, String alphabet, SegmentedField<?> field, StringBuilder text) {
+        int start = random.nextInt(text.length() + 1);
+        int before = random.nextInt(Math.min(text.length() - start, 3) + 1);
+        StringBuilder replacement = new StringBuilder();
+        for (int count = random.nextInt(4); count > 0; count--) {
+            replacement.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+
+        edit(field, text, start, before, replacement.toString());
+    }
+
+    private static String encode(TextField field) {
+        return field.getEncodedText();
+    }
+
+    private static String describe(AddressListField field) {
+        StringBuilder output = new StringBuilder();
+        for (AddressListField.Token token : field.getTokens()) {
+            output.append(token.getStart()).append('-').append(token.getEnd()).append(':')
+                    .append(token.getAddress()).append(token.isValid() ? "" : "!").append('|');
+        }
+        return output.toString();
+    }
+}
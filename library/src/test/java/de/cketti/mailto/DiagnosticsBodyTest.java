@@ -0,0 +1,218 @@
+package de.cketti.mailto;
+
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Looper;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class DiagnosticsBodyTest {
+    private Context context;
+
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    @Test(expected = IllegalArgumentException.class)
+    public void from_withNullArgument_shouldThrow() {
+        DiagnosticsBody.from(null);
+    }
+
+    @Test
+    public void compose_withMessage_shouldStartWithMessageUsingCrLf() {
+        String body = DiagnosticsBody.from(context)
+                .message("line one\nline two")
+                .compose();
+
+        assertThat(body).startsWith("line one\r\nline two\r\n\r\n--- Diagnostics ---\r\n");
+    }
+
+    @Test
+    public void compose_shouldContainStaticSections() {
+        String body = DiagnosticsBody.from(context).compose();
+
+        assertThat(body).contains(DiagnosticsBody.getStaticSections(context));
+        assertThat(body).contains("App: " + context.getPackageName());
+        assertThat(body).contains("Android version: ");
+        assertThat(body).contains("Locale: ");
+    }
+
+    @Test
+    public void getStaticSections_calledTwice_shouldReturnCachedInstance() {
+        String first = DiagnosticsBody.getStaticSections(context);
+        String second = DiagnosticsBody.getStaticSections(context);
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    public void compose_withSections_shouldContainSectionsInOrder() {
+        String body = DiagnosticsBody.from(context)
+                .section("First", new DiagnosticsBody.Section() {
+                    @Override
+                    public String collect() {
+                        return "one\ntwo";
+                    }
+                })
+                .section("Second", new DiagnosticsBody.Section() {
+                    @Override
+                    public String collect() {
+                        return "three";
+                    }
+                })
+                .compose();
+
+        assertThat(body).endsWith("\r\n--- First ---\r\none\r\ntwo\r\n\r\n--- Second ---\r\nthree\r\n");
+    }
+
+    @Test
+    public void compose_withSlowSection_shouldReportTimeout() {
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        String body = DiagnosticsBody.from(context)
+                .sectionTimeout(50, TimeUnit.MILLISECONDS)
+                .section("Slow", new DiagnosticsBody.Section() {
+                    @Override
+                    public String collect() throws Exception {
+                        latch.await();
+                        return "never";
+                    }
+                })
+                .compose();
+        latch.countDown();
+
+        assertThat(body).endsWith("\r\n--- Slow ---\r\n[timed out]\r\n");
+    }
+
+    @Test
+    public void compose_withFailingSection_shouldReportError() {
+        String body = DiagnosticsBody.from(context)
+                .section("Broken", new DiagnosticsBody.Section() {
+                    @Override
+                    public String collect() throws Exception {
+                        throw new IllegalStateException("oops");
+                    }
+                })
+                .compose();
+
+        assertThat(body).endsWith("\r\n--- Broken ---\r\n[failed: java.lang.IllegalStateException: oops]\r\n");
+    }
+
+    @Test
+    public void compose_withLongSection_shouldTruncateText() {
+        String body = DiagnosticsBody.from(context)
+                .maxSectionLength(5)
+                .section("Log", new DiagnosticsBody.Section() {
+                    @Override
+                    public String collect() {
+                        return "0123456789";
+                    }
+                })
+                .compose();
+
+        assertThat(body).endsWith("\r\n--- Log ---\r\n01234\r\n[truncated]\r\n");
+    }
+
+    @Test
+    public void compose_withLineBreakAtLimit_shouldNotSplitCrLf() {
+        String body = DiagnosticsBody.from(context)
+                .maxSectionLength(5)
+                .section("Log", new DiagnosticsBody.Section() {
+                    @Override
+                    public String collect() {
+                        return "abcd\nxyz";
+                    }
+                })
+                .compose();
+
+        assertThat(body).endsWith("\r\n--- Log ---\r\nabcd\r\n\r\n[truncated]\r\n");
+    }
+
+    @Test
+    public void compose_withFailingSectionMessageContainingLineBreak_shouldUseCrLf() {
+        String body = DiagnosticsBody.from(context)
+                .section("Broken", new DiagnosticsBody.Section() {
+                    @Override
+                    public String collect() throws Exception {
+                        throw new IllegalStateException("line one\nline two");
+                    }
+                })
+                .compose();
+
+        assertThat(body).endsWith("[failed: java.lang.IllegalStateException: line one\r\nline two]\r\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void section_withTitleContainingLineBreak_shouldThrow() {
+        DiagnosticsBody.from(context)
+                .section("Recent\nlogs", new DiagnosticsBody.Section() {
+                    @Override
+                    public String collect() {
+                        return "";
+                    }
+                });
+    }
+
+    @Test
+    public void composeAsync_shouldDeliverBodyOnMainThread() throws Exception {
+        final AtomicReference<String> result = new AtomicReference<>();
+        final AtomicReference<Thread> callbackThread = new AtomicReference<>();
+        DiagnosticsBody diagnosticsBody = DiagnosticsBody.from(context).message("hi");
+
+        diagnosticsBody.composeAsync(new DiagnosticsBody.Callback() {
+            @Override
+            public void onComposed(@NotNull String body) {
+                callbackThread.set(Thread.currentThread());
+                result.set(body);
+            }
+        });
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (result.get() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            shadowOf(Looper.getMainLooper()).idle();
+        }
+
+        assertThat(result.get()).isEqualTo(diagnosticsBody.compose());
+        assertThat(callbackThread.get()).isSameAs(Looper.getMainLooper().getThread());
+    }
+
+    @Test
+    public void truncate_withSurrogatePairAtLimit_shouldNotSplitPair() {
+        String result = DiagnosticsBody.truncate("ab😀cd", 3);
+
+        assertThat(result).isEqualTo("ab" + DiagnosticsBody.TRUNCATED_MARKER);
+    }
+
+    @Test
+    public void body_withDiagnosticsBody_shouldUseComposedText() {
+        String body = DiagnosticsBody.from(context).message("hi").compose();
+
+        String data = EmailIntentBuilder.from(context)
+                .body(DiagnosticsBody.from(context).message("hi"))
+                .build()
+                .getDataString();
+
+        assertThat(data).isEqualTo("mailto:?body=" + Uri.encode(body));
+    }
+}
@@ -0,0 +1,183 @@
+package de.cketti.mailto;
+
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.assertj.android.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class RecipientChunkPlannerTest {
+
+    @Mock
+    private Context context;
+
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void encodedLength_shouldMatchUriEncode() {
+        String[] texts = {
+                "",
+                "plain",
+                "rebel stuff & good luck",
+                "line one\r\nline two",
+                "_-!.~'()*",
+                "Grüße",
+                "日本語",
+                "emoji 😀",
+                "unpaired \uD83D surrogate",
+        };
+
+        for (String text : texts) {
+            assertThat(RecipientChunkPlanner.encodedLength(text)).as(text).isEqualTo(Uri.encode(text).length());
+        }
+    }
+
+    @Test
+    public void encodedRecipientLength_shouldMatchEncodeRecipient() {
+        String recipient = "\"\\\\\\\"it's\\ ugly\\\\\\\"\"@example.org";
+
+        int length = RecipientChunkPlanner.encodedRecipientLength(recipient);
+
+        assertThat(length).isEqualTo(EmailIntentBuilder.encodeRecipient(recipient).length());
+    }
+
+    @Test
+    public void buildChunked_withoutRecipients_shouldReturnSingleIntent() {
+        List<Intent> intents = EmailIntentBuilder.from(context)
+                .subject("hi there")
+                .buildChunked(100);
+
+        assertThat(intents).hasSize(1);
+        assertThat(intents.get(0)).hasAction(Intent.ACTION_SENDTO).hasData("mailto:?subject=hi%20there");
+    }
+
+    @Test
+    public void buildChunked_withRecipientsFittingIntoBudget_shouldReturnSameResultAsBuild() {
+        EmailIntentBuilder builder = EmailIntentBuilder.from(context)
+                .to("leia@example.org")
+                .cc("han@example.org")
+                .bcc("chewbacca@example.org")
+                .subject("rebel stuff");
+
+        List<Intent> intents = builder.buildChunked(1000);
+
+        assertThat(intents).hasSize(1);
+        assertThat(intents.get(0)).hasData(builder.build().getDataString());
+    }
+
+    @Test
+    public void buildChunked_withSmallBudget_shouldSplitRecipients() {
+        List<Intent> intents = EmailIntentBuilder.from(context)
+                .to("alice@example.org")
+                .to("bob@example.org")
+                .subject("hi")
+                .buildChunked(50);
+
+        assertThat(intents).hasSize(2);
+        assertThat(intents.get(0)).hasData("mailto:alice@example.org?subject=hi");
+        assertThat(intents.get(1)).hasData("mailto:bob@example.org?subject=hi");
+    }
+
+    @Test
+    public void buildChunked_withManyRecipients_shouldNotExceedBudget() {
+        int maxUriLength = 500;
+        Set<String> to = createRecipients("to", 50);
+        Set<String> cc = createRecipients("cc.person", 100);
+        Set<String> bcc = createRecipients("b", 1000);
+
+        List<Intent> intents = EmailIntentBuilder.from(context)
+                .to(to)
+                .cc(cc)
+                .bcc(bcc)
+                .subject("Newsletter & updates")
+                .body("Hello everyone,\nthis is the news.")
+                .buildChunked(maxUriLength);
+
+        Set<String> allRecipients = new LinkedHashSet<>();
+        int totalLength = 0;
+        for (Intent intent : intents) {
+            String mailto = intent.getDataString();
+            assertThat(mailto.length()).isLessThanOrEqualTo(maxUriLength);
+
+            String[] parts = mailto.substring("mailto:".length()).split("\\?", 2);
+            String query = parts.length > 1 ? parts[1] : "";
+            assertThat(query).contains("subject=Newsletter%20%26%20updates");
+            assertThat(query).contains("body=Hello%20everyone%2C%0D%0Athis%20is%20the%20news.");
+
+            allRecipients.addAll(splitRecipients(parts[0]));
+            allRecipients.addAll(splitRecipients(getQueryParameter(query, "cc")));
+            allRecipients.addAll(splitRecipients(getQueryParameter(query, "bcc")));
+            totalLength += mailto.length();
+        }
+
+        assertThat(allRecipients).hasSize(to.size() + cc.size() + bcc.size());
+        assertThat(allRecipients).containsAll(to).containsAll(cc).containsAll(bcc);
+        // A new chunk is only started when the next recipient (at most 30 characters here) doesn't fit into any of
+        // the existing ones. So all chunks but the last one are filled almost completely.
+        assertThat(intents.size()).isLessThanOrEqualTo(totalLength / (maxUriLength - 30) + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void buildChunked_withRecipientExceedingBudget_shouldThrow() {
+        EmailIntentBuilder.from(context)
+                .to("a.very.long.name@example.org")
+                .buildChunked(20);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void buildChunked_withBodyExceedingBudget_shouldThrow() {
+        EmailIntentBuilder.from(context)
+                .body("This body is too long for the budget")
+                .buildChunked(20);
+    }
+
+    private static Set<String> createRecipients(String prefix, int count) {
+        Set<String> recipients = new LinkedHashSet<>();
+        for (int i = 0; i < count; i++) {
+            recipients.add(prefix + i + "@example.org");
+        }
+        return recipients;
+    }
+
+    private static String getQueryParameter(String query, String name) {
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith(name + "=")) {
+                return parameter.substring(name.length() + 1);
+            }
+        }
+
+        return "";
+    }
+
+    private static List<String> splitRecipients(String recipients) {
+        List<String> result = new ArrayList<>();
+        for (String recipient : recipients.split(",")) {
+            if (!recipient.isEmpty()) {
+                result.add(recipient);
+            }
+        }
+        return result;
+    }
+}
@@ -1,8 +1,11 @@
 package de.cketti.mailto.sample;
 
 
+import java.util.List;
+
 import android.os.Bundle;
-import android.text.TextUtils;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
@@ -10,16 +13,15 @@ import android.widget.EditText;
 
 import androidx.appcompat.app.AppCompatActivity;
 import com.google.android.material.snackbar.Snackbar;
+import de.cketti.mailto.AddressListField;
+import de.cketti.mailto.ComposeForm;
+import de.cketti.mailto.DiagnosticsBody;
 import de.cketti.mailto.EmailIntentBuilder;
 
 
 public class MainActivity extends AppCompatActivity {
     private View mainContent;
-    private EditText emailTo;
-    private EditText emailCc;
-    private EditText emailBcc;
-    private EditText emailSubject;
-    private EditText emailBody;
+    private ComposeForm form;
 
 
     @Override
@@ -28,11 +30,19 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
 
         mainContent = findViewById(R.id.main_content);
-        emailTo = findViewById(R.id.email_to);
-        emailCc = findViewById(R.id.email_cc);
-        emailBcc = findViewById(R.id.email_bcc);
-        emailSubject = findViewById(R.id.email_subject);
-        emailBody = findViewById(R.id.email_body);
+        form = ComposeForm.from(this);
+
+        EditText emailTo = findViewById(R.id.email_to);
+        EditText emailCc = findViewById(R.id.email_cc);
+        EditText emailBcc = findViewById(R.id.email_bcc);
+        EditText emailSubject = findViewById(R.id.email_subject);
+        EditText emailBody = findViewById(R.id.email_body);
+
+        addAddressField(emailTo, form.to());
+        addAddressField(emailCc, form.cc());
+        addAddressField(emailBcc, form.bcc());
+        emailSubject.addTextChangedListener(form.subject());
+        emailBody.addTextChangedListener(form.body());
 
         findViewById(R.id.button_send_email).setOnClickListener(v -> sendEmail());
     }
@@ -52,10 +62,16 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void sendFeedback() {
+        DiagnosticsBody.from(this)
+                .message(getString(R.string.feedback_body))
+                .composeAsync(this::sendFeedback);
+    }
+
+    private void sendFeedback(String body) {
         boolean success = EmailIntentBuilder.from(this)
                 .to("cketti@gmail.com")
                 .subject(getString(R.string.feedback_subject))
-                .body(getString(R.string.feedback_body))
+                .body(body)
                 .start();
 
         if (!success) {
@@ -63,39 +79,39 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    void sendEmail() {
-        String to = emailTo.getText().toString();
-        String cc = emailCc.getText().toString();
-        String bcc = emailBcc.getText().toString();
-        String subject = emailSubject.getText().toString();
-        String body = emailBody.getText().toString();
-
-        EmailIntentBuilder builder = EmailIntentBuilder.from(this);
-
-        try {
-            if (!TextUtils.isEmpty(to)) {
-                builder.to(to);
-            }
-            if (!TextUtils.isEmpty(cc)) {
-                builder.cc(cc);
-            }
-            if (!TextUtils.isEmpty(bcc)) {
-                builder.bcc(bcc);
+    private void addAddressField(EditText editText, AddressListField field) {
+        editText.addTextChangedListener(field);
+        editText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
             }
-            if (!TextUtils.isEmpty(subject)) {
-                builder.subject(subject);
-            }
-            if (!TextUtils.isEmpty(body)) {
-                builder.body(body);
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
             }
 
-            boolean success = builder.start();
-            if (!success) {
-                Snackbar.make(mainContent, R.string.error_no_email_app, Snackbar.LENGTH_LONG).show();
+            @Override
+            public void afterTextChanged(Editable s) {
+                List<AddressListField.Token> invalidTokens = field.getInvalidTokens();
+                if (invalidTokens.isEmpty()) {
+                    editText.setError(null);
+                } else {
+                    String address = invalidTokens.get(0).getAddress();
+                    editText.setError(getString(R.string.invalid_address_error, address));
+                }
             }
-        } catch (IllegalArgumentException e) {
-            String errorMessage = getString(R.string.argument_error, e.getMessage());
-            Snackbar.make(mainContent, errorMessage, Snackbar.LENGTH_LONG).show();
+        });
+    }
+
+    void sendEmail() {
+        if (form.hasErrors()) {
+            Snackbar.make(mainContent, R.string.form_error, Snackbar.LENGTH_LONG).show();
+            return;
+        }
+
+        boolean success = form.start();
+        if (!success) {
+            Snackbar.make(mainContent, R.string.error_no_email_app, Snackbar.LENGTH_LONG).show();
         }
     }
 }